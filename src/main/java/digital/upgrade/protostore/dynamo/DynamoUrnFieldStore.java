@@ -5,9 +5,12 @@ import net.sitemorph.protostore.CrudIterator;
 import net.sitemorph.protostore.CrudStore;
 import net.sitemorph.protostore.MessageNotFoundException;
 
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.PredefinedClientConfigurations;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
@@ -23,7 +26,10 @@ import com.amazonaws.services.dynamodbv2.document.UpdateItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.Descriptors.FieldDescriptor;
@@ -31,9 +37,14 @@ import com.google.protobuf.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Dynamo store that implements
@@ -48,6 +59,16 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
   private FieldDescriptor urnField;
   private T.Builder prototype;
   private Set<FieldDescriptor> secondaryIndexes = Sets.newHashSet();
+  private Map<FieldDescriptor, ProjectionType> partialIndexes = Maps.newHashMap();
+  private ItemHydrator keysOnlyHydrator;
+  private ItemHydrator includeHydrator;
+  private ReadOptions readOptions = ReadOptions.DEFAULT;
+  private final LatencyTracker readLatency = new LatencyTracker(1024);
+  private ExecutorService executor;
+  private boolean ownsExecutor;
+  private ExecutorService queryExecutor;
+  private boolean ownsQueryExecutor;
+  private int queryParallelism = 8;
 
   @Override
   public T create(T.Builder builder) throws CrudException {
@@ -69,15 +90,23 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
 
   @Override
   public CrudIterator<T> read(T.Builder builder) throws CrudException {
+    return read(builder, readOptions);
+  }
+
+  /**
+   * Read using the given options for urn lookups rather than the store
+   * defaults. Index queries and scans are unaffected.
+   */
+  public CrudIterator<T> read(T.Builder builder, ReadOptions options)
+      throws CrudException {
     if (builder.hasField(urnField)) {
-      GetItemSpec itemSpec = new GetItemSpec();
-      itemSpec.withPrimaryKey(new PrimaryKey(urnField.getName(), builder.getField(urnField)));
-      itemSpec.withConsistentRead(true);
-      return new ItemArrayIterator<T>(builder, table.getItem(itemSpec));
+      PrimaryKey key = new PrimaryKey(urnField.getName(), builder.getField(urnField));
+      return new ItemArrayIterator<T>(builder, getItem(key, options));
     }
     for (FieldDescriptor index : secondaryIndexes) {
       if (builder.hasField(index)) {
-        ItemQueryIterator<T> iterator = new ItemQueryIterator<T>(builder, index, table);
+        ItemQueryIterator<T> iterator = new ItemQueryIterator<T>(builder, index,
+            table, hydrator(index));
         iterator.initialise();
         return iterator;
       }
@@ -87,6 +116,92 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
     return iterator;
   }
 
+  /**
+   * Read the items whose secondary index field matches any of the values.
+   * The per value queries run concurrently, bounded by the store query
+   * parallelism, and the results are merged in no particular order.
+   *
+   * @param builder prototype used to build returned messages
+   * @param fieldName name of a field registered as a secondary index
+   * @param values index values to query for
+   * @param distinct skip items whose urn has already been returned
+   */
+  public CrudIterator<T> readIn(T.Builder builder, String fieldName,
+      Collection<?> values, boolean distinct) throws CrudException {
+    for (FieldDescriptor index : secondaryIndexes) {
+      if (index.getName().equals(fieldName)) {
+        ItemMultiQueryIterator<T> iterator = new ItemMultiQueryIterator<T>(
+            builder, index, table, values, queryExecutor, queryParallelism,
+            distinct ? urnField : null, hydrator(index));
+        iterator.initialise();
+        return iterator;
+      }
+    }
+    throw new CrudException("Unknown secondary index field name: " + fieldName);
+  }
+
+  private ItemHydrator hydrator(FieldDescriptor index) {
+    ProjectionType projection = partialIndexes.get(index);
+    if (null == projection) {
+      return null;
+    }
+    return ProjectionType.KEYS_ONLY == projection ? keysOnlyHydrator :
+        includeHydrator;
+  }
+
+  Item getItem(PrimaryKey key, ReadOptions options) throws CrudException {
+    switch (options.getConsistency()) {
+      case STRONG:
+        return getItem(key, true);
+
+      case EVENTUAL:
+        return getEventualItem(key, options);
+
+      case EVENTUAL_WITH_STRONG_FALLBACK:
+        Item item = getEventualItem(key, options);
+        if (null == item) {
+          item = getItem(key, true);
+        }
+        return item;
+
+      default:
+        throw new CrudException("Unsupported read consistency: " +
+            options.getConsistency());
+    }
+  }
+
+  Item getItem(PrimaryKey key, boolean consistent) {
+    GetItemSpec itemSpec = new GetItemSpec();
+    itemSpec.withPrimaryKey(key);
+    itemSpec.withConsistentRead(consistent);
+    return table.getItem(itemSpec);
+  }
+
+  /**
+   * Eventually consistent get, hedged when the options ask for it. The
+   * latency recorded is what the caller waited for the whole read, so slow
+   * attempts that lose to a hedge or fail still count towards the tail.
+   */
+  private Item getEventualItem(final PrimaryKey key, ReadOptions options)
+      throws CrudException {
+    long start = System.nanoTime();
+    try {
+      if (!options.isHedged()) {
+        return getItem(key, false);
+      }
+      Callable<Item> get = new Callable<Item>() {
+        @Override
+        public Item call() throws Exception {
+          return getItem(key, false);
+        }
+      };
+      return HedgedCall.first(executor, get, readLatency.percentileMillis(
+          options.getHedgePercentile(), options.getHedgeDelayMillis()));
+    } finally {
+      readLatency.record(System.nanoTime() - start);
+    }
+  }
+
   @Override
   public T update(T.Builder builder) throws CrudException {
     List<FieldDescriptor> fieldList = prototype.getDescriptorForType().getFields();
@@ -132,6 +247,12 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
 
   @Override
   public void close() throws CrudException {
+    if (ownsExecutor) {
+      executor.shutdownNow();
+    }
+    if (ownsQueryExecutor) {
+      queryExecutor.shutdownNow();
+    }
     try {
       table.waitForAllActiveOrDelete();
     } catch (InterruptedException e) {
@@ -260,6 +381,10 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
 
     private String urnFieldName = "urn";
     private Region region = Region.getRegion(Regions.EU_WEST_1);
+    private String endpoint;
+    private RequestMetricCollector metricCollector;
+    private ClientConfiguration clientConfiguration =
+        PredefinedClientConfigurations.dynamoDefault();
 
     public Builder<M> setAccessKey(String accessKey) {
       this.accessKey = accessKey;
@@ -286,11 +411,87 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
       return this;
     }
 
+    /**
+     * Override the service endpoint, for example http://localhost:8000 for
+     * DynamoDB Local. Takes precedence over the region endpoint.
+     */
+    public Builder<M> setEndpoint(String endpoint) {
+      this.endpoint = endpoint;
+      return this;
+    }
+
+    /**
+     * Client configuration, defaulting to the DynamoDB client defaults with
+     * their throttling retry policy.
+     */
+    public Builder<M> setClientConfiguration(ClientConfiguration configuration) {
+      this.clientConfiguration = configuration;
+      return this;
+    }
+
+    /**
+     * Collector given the metrics of every request made by the store, for
+     * example a {@link ThrottleCounter}.
+     */
+    public Builder<M> setRequestMetricCollector(RequestMetricCollector collector) {
+      this.metricCollector = collector;
+      return this;
+    }
+
+    public Builder<M> setReadOptions(ReadOptions readOptions) {
+      result.readOptions = readOptions;
+      return this;
+    }
+
+    /**
+     * Executor used for short background requests: hedged reads and batch
+     * fetches for partially projected indexes. Its tasks never wait on a
+     * reader. When not set the store creates and shuts down its own.
+     */
+    public Builder<M> setExecutor(ExecutorService executor) {
+      result.executor = executor;
+      return this;
+    }
+
+    /**
+     * Executor running readIn index queries. Each query occupies a thread
+     * until its reader has consumed the results, so it is kept apart from the
+     * background request executor. When not set the store creates and shuts
+     * down its own.
+     */
+    public Builder<M> setQueryExecutor(ExecutorService queryExecutor) {
+      result.queryExecutor = queryExecutor;
+      return this;
+    }
+
+    /**
+     * Maximum number of concurrent index queries run by a single readIn.
+     */
+    public Builder<M> setQueryParallelism(int queryParallelism) {
+      result.queryParallelism = queryParallelism;
+      return this;
+    }
+
     public Builder<M> withSecondaryIndex(String fieldName)
         throws CrudException {
+      return withSecondaryIndex(fieldName, ProjectionType.ALL);
+    }
+
+    /**
+     * Register a secondary index named {@code <field>-index} with the given
+     * projection. Query results from KEYS_ONLY indexes are always fetched
+     * from the table, INCLUDE results only when they lack a message field.
+     */
+    public Builder<M> withSecondaryIndex(String fieldName,
+        ProjectionType projection) throws CrudException {
       for (FieldDescriptor field : result.prototype.getDescriptorForType().getFields()) {
         if (field.getName().equals(fieldName)) {
           result.secondaryIndexes.add(field);
+          if (ProjectionType.ALL == projection) {
+            result.partialIndexes.remove(field);
+          } else {
+            result.partialIndexes.put(field, projection);
+          }
           return this;
         }
       }
@@ -308,8 +509,11 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
             @Override
             public void refresh() {
             }
-          });
+          }, clientConfiguration, metricCollector);
       client.setRegion(region);
+      if (null != endpoint) {
+        client.setEndpoint(endpoint);
+      }
       DynamoDB dynamo = new DynamoDB(client);
       result.dynamo = dynamo;
       result.table = dynamo.getTable(result.prototype.getDescriptorForType().getName());
@@ -320,6 +524,26 @@ public class DynamoUrnFieldStore<T extends Message> implements CrudStore<T> {
           result.urnField = field;
         }
       }
+      if (null == result.executor) {
+        result.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("dynamo-" + result.prototype.getDescriptorForType().getName() + "-%d")
+            .build());
+        result.ownsExecutor = true;
+      }
+      if (null == result.queryExecutor) {
+        result.queryExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("dynamo-" + result.prototype.getDescriptorForType().getName() + "-query-%d")
+            .build());
+        result.ownsQueryExecutor = true;
+      }
+      result.keysOnlyHydrator = new ItemHydrator(dynamo, result.table,
+          result.urnField, result.prototype.getDescriptorForType(),
+          result.executor, false);
+      result.includeHydrator = new ItemHydrator(dynamo, result.table,
+          result.urnField, result.prototype.getDescriptorForType(),
+          result.executor, true);
 
       return (DynamoUrnFieldStore<M>)result;
     }
@@ -0,0 +1,63 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a call and, when it has not returned within the delay, a duplicate of
+ * it. The first successful result wins and the other call is cancelled.
+ *
+ * @author damien@upgrade-digital.com
+ */
+class HedgedCall {
+
+  private HedgedCall() {}
+
+  static <V> V first(ExecutorService executor, Callable<V> call,
+      long delayMillis) throws CrudException {
+    CompletionService<V> calls = new ExecutorCompletionService<V>(executor);
+    List<Future<V>> pending = Lists.newArrayListWithCapacity(2);
+    try {
+      pending.add(calls.submit(call));
+      Future<V> done = calls.poll(delayMillis, TimeUnit.MILLISECONDS);
+      if (null == done) {
+        pending.add(calls.submit(call));
+        done = calls.take();
+      }
+      int remaining = pending.size();
+      while (true) {
+        remaining--;
+        try {
+          return done.get();
+        } catch (ExecutionException e) {
+          if (0 == remaining) {
+            throw e;
+          }
+        }
+        done = calls.take();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CrudException("Interrupted during hedged read", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new CrudException("Hedged read failed", e.getCause());
+    } finally {
+      for (Future<V> future : pending) {
+        future.cancel(true);
+      }
+    }
+  }
+}
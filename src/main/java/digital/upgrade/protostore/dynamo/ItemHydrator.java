@@ -0,0 +1,158 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+
+import com.amazonaws.services.dynamodbv2.document.BatchGetItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.TableKeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Fetch full items for the results of a keys only or include projected
+ * secondary index using batch gets. For include projections items which
+ * already carry every message field are returned as is.
+ *
+ * @author damien@upgrade-digital.com
+ */
+class ItemHydrator {
+
+  /**
+   * Maximum number of keys in a single batch get request.
+   */
+  static final int BATCH_LIMIT = 100;
+
+  private static final long MAX_BACKOFF_MILLIS = 1000;
+  private static final int MAX_RETRIES = 8;
+
+  private final DynamoDB dynamo;
+  private final Table table;
+  private final String urnName;
+  private final List<String> fieldNames = Lists.newArrayList();
+  private final ExecutorService executor;
+  private final boolean checkCovered;
+
+  ItemHydrator(DynamoDB dynamo, Table table, FieldDescriptor urnField,
+      Descriptor descriptor, ExecutorService executor, boolean checkCovered) {
+    this.dynamo = dynamo;
+    this.table = table;
+    this.urnName = urnField.getName();
+    for (FieldDescriptor field : descriptor.getFields()) {
+      fieldNames.add(field.getName());
+    }
+    this.executor = executor;
+    this.checkCovered = checkCovered;
+  }
+
+  Future<List<Item>> submit(final List<Item> keys) {
+    return executor.submit(new Callable<List<Item>>() {
+      @Override
+      public List<Item> call() throws Exception {
+        return hydrate(keys);
+      }
+    });
+  }
+
+  static List<Item> await(Future<List<Item>> future) throws CrudException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CrudException("Interrupted waiting for items", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof CrudException) {
+        throw (CrudException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new CrudException("Item fetch failed", e.getCause());
+    }
+  }
+
+  /**
+   * Return the full items for up to {@link #BATCH_LIMIT} index results in
+   * index order. Items deleted since they were indexed are dropped.
+   */
+  List<Item> hydrate(List<Item> keys) throws CrudException, InterruptedException {
+    List<Object> missing = Lists.newArrayListWithCapacity(keys.size());
+    for (Item key : keys) {
+      if (!covered(key)) {
+        missing.add(key.getString(urnName));
+      }
+    }
+    if (missing.isEmpty()) {
+      return keys;
+    }
+    Map<String, Item> fetched = fetch(missing);
+    List<Item> result = Lists.newArrayListWithCapacity(keys.size());
+    for (Item key : keys) {
+      if (covered(key)) {
+        result.add(key);
+        continue;
+      }
+      Item item = fetched.get(key.getString(urnName));
+      if (null != item) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Batch get the items for the given urns keyed by urn.
+   */
+  Map<String, Item> fetch(List<Object> urns)
+      throws CrudException, InterruptedException {
+    Map<String, Item> fetched = Maps.newHashMap();
+    String tableName = table.getTableName();
+    BatchGetItemOutcome outcome = dynamo.batchGetItem(
+        new TableKeysAndAttributes(tableName)
+            .addHashOnlyPrimaryKeys(urnName, urns.toArray()));
+    long backoff = 10;
+    int retries = 0;
+    while (true) {
+      List<Item> items = outcome.getTableItems().get(tableName);
+      if (null != items) {
+        for (Item item : items) {
+          fetched.put(item.getString(urnName), item);
+        }
+      }
+      Map<String, KeysAndAttributes> unprocessed = outcome.getUnprocessedKeys();
+      if (null == unprocessed || unprocessed.isEmpty()) {
+        return fetched;
+      }
+      if (MAX_RETRIES <= retries++) {
+        throw new CrudException("Batch get gave up with unprocessed keys after " +
+            MAX_RETRIES + " retries");
+      }
+      Thread.sleep(backoff);
+      backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+      outcome = dynamo.batchGetItemUnprocessed(unprocessed);
+    }
+  }
+
+  private boolean covered(Item item) {
+    if (!checkCovered) {
+      return false;
+    }
+    for (String name : fieldNames) {
+      if (!item.hasAttribute(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
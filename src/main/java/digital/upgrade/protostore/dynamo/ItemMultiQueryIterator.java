@@ -0,0 +1,200 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+import net.sitemorph.protostore.CrudIterator;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Query a secondary index for several hash key values at once. Up to the
+ * given parallelism of per value queries run on the executor and their items
+ * are merged into a single bounded buffer, so results arrive in no particular
+ * order across values. Optionally items with an already returned urn are
+ * skipped. Results of partially projected indexes are hydrated by the
+ * workers in batches.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class ItemMultiQueryIterator<T extends Message> implements CrudIterator<T> {
+
+  private static final Item DONE = new Item();
+  private static final int BUFFER = 1000;
+  private static final long POLL_MILLIS = 100;
+
+  private final T.Builder prototype;
+  private final FieldDescriptor index;
+  private final Table table;
+  private final ConcurrentLinkedQueue<Object> values;
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final String urnName;
+  private final Set<String> seen;
+  private final ItemHydrator hydrator;
+
+  private final BlockingQueue<Item> buffer = new LinkedBlockingQueue<Item>(BUFFER);
+  private final AtomicReference<Exception> failure =
+      new AtomicReference<Exception>();
+  private final AtomicInteger live = new AtomicInteger();
+  private final List<Future<?>> workers = Lists.newArrayList();
+  private volatile boolean closed;
+  private Item nextItem;
+
+  public ItemMultiQueryIterator(T.Builder prototype, FieldDescriptor index,
+      Table table, Collection<?> values, ExecutorService executor,
+      int parallelism, FieldDescriptor distinctUrn, ItemHydrator hydrator) {
+    this.prototype = prototype;
+    this.index = index;
+    this.table = table;
+    this.values = new ConcurrentLinkedQueue<Object>(values);
+    this.executor = executor;
+    this.parallelism = Math.max(1, Math.min(parallelism, values.size()));
+    this.urnName = null == distinctUrn ? null : distinctUrn.getName();
+    this.seen = null == distinctUrn ? null : Sets.<String>newHashSet();
+    this.hydrator = hydrator;
+  }
+
+  public void initialise() throws CrudException {
+    if (values.isEmpty()) {
+      return;
+    }
+    live.set(parallelism);
+    for (int i = 0; i < parallelism; i++) {
+      try {
+        workers.add(executor.submit(worker()));
+      } catch (RejectedExecutionException e) {
+        close();
+        throw new CrudException("Index query rejected by executor", e);
+      }
+    }
+  }
+
+  private Runnable worker() {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Object value;
+          while (!closed && null != (value = values.poll())) {
+            Iterator<Item> items = query(value);
+            while (!closed && items.hasNext()) {
+              if (null == hydrator) {
+                buffer.put(items.next());
+                continue;
+              }
+              List<Item> keys = Lists.newArrayListWithCapacity(
+                  ItemHydrator.BATCH_LIMIT);
+              while (keys.size() < ItemHydrator.BATCH_LIMIT && items.hasNext()) {
+                keys.add(items.next());
+              }
+              for (Item item : hydrator.hydrate(keys)) {
+                buffer.put(item);
+              }
+            }
+          }
+        } catch (InterruptedException e) {
+          if (!closed) {
+            failure.compareAndSet(null, e);
+          }
+        } catch (CrudException e) {
+          if (!closed) {
+            failure.compareAndSet(null, e);
+          }
+        } catch (RuntimeException e) {
+          if (!closed) {
+            failure.compareAndSet(null, e);
+          }
+        } finally {
+          live.decrementAndGet();
+          // Wake a reader waiting on an empty buffer. When the buffer is full
+          // the offer fails but the reader is not waiting and sees the count.
+          buffer.offer(DONE);
+        }
+      }
+    };
+  }
+
+  Iterator<Item> query(Object value) {
+    return ItemQueryIterator.query(table, index, value).iterator();
+  }
+
+  @Override
+  public T next() throws CrudException {
+    if (!hasNext()) {
+      throw new CrudException("No more items");
+    }
+    T.Builder builder = prototype.clone();
+    ItemArrayIterator.setFields(nextItem, builder);
+    nextItem = null;
+    return (T)builder.build();
+  }
+
+  @Override
+  public boolean hasNext() throws CrudException {
+    while (null == nextItem && !closed) {
+      if (null != failure.get()) {
+        close();
+        throw new CrudException("Index query failed", failure.get());
+      }
+      // Workers enqueue all their items before counting down so an empty
+      // buffer once none are live means every result has been seen. Until
+      // then finishing workers wake the reader, the timeout only catches
+      // workers dropped by an executor shutdown.
+      boolean finished = 0 == live.get();
+      Item item;
+      try {
+        item = finished ? buffer.poll() :
+            buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CrudException("Interrupted waiting for query results", e);
+      }
+      if (null == item) {
+        if (finished && null == failure.get()) {
+          return false;
+        }
+        if (0 < live.get() && executor.isTerminated()) {
+          failure.compareAndSet(null, new RejectedExecutionException(
+              "Executor shut down before index query completed"));
+        }
+        continue;
+      }
+      if (DONE == item) {
+        continue;
+      }
+      if (null != seen && !seen.add(item.getString(urnName))) {
+        continue;
+      }
+      nextItem = item;
+    }
+    return null != nextItem;
+  }
+
+  @Override
+  public void close() throws CrudException {
+    closed = true;
+    for (Future<?> worker : workers) {
+      worker.cancel(true);
+    }
+    buffer.clear();
+    nextItem = null;
+  }
+}
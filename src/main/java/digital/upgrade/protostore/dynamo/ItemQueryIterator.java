@@ -10,55 +10,116 @@ import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
 import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
 import com.amazonaws.services.dynamodbv2.document.Table;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.google.common.collect.Lists;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Message;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Dynamo database scan iterator which uses a secondary index to scan for a
  * collection of results.
  *
+ * When the index does not project all attributes a hydrator is given and the
+ * index keys are fetched in batches in the background, a few batches ahead of
+ * the reader, keeping the index order.
+ *
  * @author damien@sitemorph.net
  */
 public class ItemQueryIterator<T extends Message> implements CrudIterator<T> {
 
+  private static final int PREFETCH = 2;
+
   private final T.Builder prototype;
   private final FieldDescriptor index;
   private final Table table;
+  private final ItemHydrator hydrator;
+  private final Deque<Future<List<Item>>> batches =
+      new ArrayDeque<Future<List<Item>>>();
   private ItemCollection<QueryOutcome> outcome;
   private Iterator<Item> itemIterator;
+  private Iterator<Item> batch = Collections.<Item>emptyList().iterator();
 
   public ItemQueryIterator(T.Builder prototype, FieldDescriptor index,
       Table table) {
+    this(prototype, index, table, null);
+  }
+
+  ItemQueryIterator(T.Builder prototype, FieldDescriptor index,
+      Table table, ItemHydrator hydrator) {
     this.prototype = prototype;
     this.index = index;
     this.table = table;
+    this.hydrator = hydrator;
   }
 
   @Override
   public T next() throws CrudException {
     T.Builder builder = prototype.clone();
-    Item item = itemIterator.next();
+    Item item;
+    if (null == hydrator) {
+      item = itemIterator.next();
+    } else if (hasNext()) {
+      item = batch.next();
+    } else {
+      throw new CrudException("No more items");
+    }
     ItemArrayIterator.setFields(item, builder);
     return (T)builder.build();
   }
 
   @Override
   public boolean hasNext() throws CrudException {
-    return itemIterator.hasNext();
+    if (null == hydrator) {
+      return itemIterator.hasNext();
+    }
+    while (!batch.hasNext()) {
+      prefetch();
+      if (batches.isEmpty()) {
+        return false;
+      }
+      batch = ItemHydrator.await(batches.poll()).iterator();
+    }
+    return true;
+  }
+
+  private void prefetch() {
+    while (batches.size() < PREFETCH && itemIterator.hasNext()) {
+      List<Item> keys = Lists.newArrayListWithCapacity(ItemHydrator.BATCH_LIMIT);
+      while (keys.size() < ItemHydrator.BATCH_LIMIT && itemIterator.hasNext()) {
+        keys.add(itemIterator.next());
+      }
+      batches.add(hydrator.submit(keys));
+    }
   }
 
   @Override
   public void close() throws CrudException {
+    for (Future<List<Item>> pending : batches) {
+      pending.cancel(true);
+    }
+    batches.clear();
   }
 
   public void initialise() {
+    outcome = query(table, index, prototype.getField(index));
+    itemIterator = outcome.iterator();
+    if (null != hydrator) {
+      prefetch();
+    }
+  }
+
+  static ItemCollection<QueryOutcome> query(Table table, FieldDescriptor index,
+      Object value) {
     Index global = table.getIndex(index.getName() + "-index");
-    KeyAttribute key = new KeyAttribute(index.getName(), prototype.getField(index));
+    KeyAttribute key = new KeyAttribute(index.getName(), value);
     QuerySpec querySpec = new QuerySpec();
     querySpec.withHashKey(key);
-    outcome = global.query(querySpec);
-    itemIterator = outcome.iterator();
+    return global.query(querySpec);
   }
 }
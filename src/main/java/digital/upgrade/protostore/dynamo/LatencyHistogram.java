@@ -0,0 +1,79 @@
+package digital.upgrade.protostore.dynamo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free log linear histogram of latencies in microseconds. Each power of
+ * two is split into 16 buckets giving roughly 6% precision over the whole
+ * range.
+ *
+ * @author damien@upgrade-digital.com
+ */
+class LatencyHistogram {
+
+  private static final int SUB_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  void record(long nanos) {
+    counts.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+  }
+
+  long count() {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * Lower bound in microseconds of the bucket holding the given percentile,
+   * or zero when nothing has been recorded.
+   */
+  long percentileMicros(double percentile) {
+    long total = count();
+    if (0 == total) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return value(i);
+      }
+    }
+    return value(BUCKETS - 1);
+  }
+
+  long maxMicros() {
+    for (int i = BUCKETS - 1; 0 <= i; i--) {
+      if (0 < counts.get(i)) {
+        return value(i);
+      }
+    }
+    return 0;
+  }
+
+  static int bucket(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) Math.max(0, micros);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long value(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long sub = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+  }
+}
@@ -0,0 +1,66 @@
+package digital.upgrade.protostore.dynamo;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Window of the most recent request latencies used to pick hedge delays.
+ * The percentile is cached and only recomputed after a number of new samples
+ * so that reads normally pay for a couple of volatile loads.
+ *
+ * @author damien@upgrade-digital.com
+ */
+class LatencyTracker {
+
+  private static final int MIN_SAMPLES = 32;
+  private static final int REFRESH_SAMPLES = 64;
+
+  private final long[] samples;
+  private int next;
+  private int count;
+  private int sinceRefresh;
+
+  private volatile boolean stale = true;
+  private volatile double cachedPercentile = -1;
+  private volatile long cachedMillis;
+
+  LatencyTracker(int window) {
+    samples = new long[window];
+  }
+
+  synchronized void record(long nanos) {
+    samples[next] = nanos;
+    next = (next + 1) % samples.length;
+    if (count < samples.length) {
+      count++;
+    }
+    if (REFRESH_SAMPLES <= ++sinceRefresh) {
+      sinceRefresh = 0;
+      stale = true;
+    }
+  }
+
+  /**
+   * Latency at the given percentile in milliseconds or the default when too
+   * few samples have been recorded.
+   */
+  long percentileMillis(double percentile, long defaultMillis) {
+    if (!stale && percentile == cachedPercentile) {
+      return cachedMillis;
+    }
+    long[] sorted;
+    synchronized (this) {
+      if (count < MIN_SAMPLES) {
+        return defaultMillis;
+      }
+      sorted = Arrays.copyOf(samples, count);
+      stale = false;
+    }
+    Arrays.sort(sorted);
+    int index = Math.min(sorted.length - 1, (int) (percentile * sorted.length));
+    long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(sorted[index]));
+    cachedMillis = millis;
+    cachedPercentile = percentile;
+    return millis;
+  }
+}
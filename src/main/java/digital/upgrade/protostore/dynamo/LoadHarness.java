@@ -0,0 +1,452 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+import net.sitemorph.protostore.CrudIterator;
+
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Generate a weighted mix of store operations from a number of concurrent
+ * workers, optionally on a fixed schedule at a target rate, and report
+ * throughput, latency percentiles and throttling per operation. With a
+ * target rate latency is measured from each operation's scheduled start, so
+ * it includes queueing when the workers fall behind. Reads, queries, updates
+ * and deletes act on messages created during the run; until one exists a
+ * create is made instead.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class LoadHarness<T extends Message> {
+
+  private static final Logger log = LoggerFactory.getLogger("LoadHarness");
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private DynamoUrnFieldStore<T> store;
+  private T.Builder prototype;
+  private MessageFactory<T> factory;
+  private FieldDescriptor urnField;
+  private FieldDescriptor indexField;
+  private final Map<LoadOperation, Integer> mix =
+      Maps.newEnumMap(LoadOperation.class);
+  private final List<Integer> sizes = Lists.newArrayList();
+  private final List<Integer> sizeWeights = Lists.newArrayList();
+  private int concurrency = 8;
+  private double rate;
+  private long durationMillis = TimeUnit.MINUTES.toMillis(1);
+  private int scanLimit = 100;
+  private int queryLimit = 100;
+  private int poolLimit = 10000;
+  private ThrottleCounter throttleCounter;
+
+  private final List<T> created = Lists.newArrayList();
+
+  /**
+   * Run the configured load until the duration has passed.
+   */
+  public LoadReport run() throws CrudException {
+    final LoadReport report = new LoadReport();
+    Map<LoadOperation, Long> throttledBefore = throttles();
+    final int totalWeight = total(mix.values());
+    final AtomicLong slots = new AtomicLong();
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    report.setTargetRate(rate);
+    ExecutorService workers = Executors.newFixedThreadPool(concurrency,
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("load-%d")
+            .build());
+    List<Future<?>> running = Lists.newArrayList();
+    log.info("Running {} workers at {} ops/s for {} ms with mix {}",
+        concurrency, 0 < rate ? rate : "unlimited", durationMillis, mix);
+    for (int i = 0; i < concurrency; i++) {
+      running.add(workers.submit(new Runnable() {
+        @Override
+        public void run() {
+          Random random = new Random();
+          while (!Thread.currentThread().isInterrupted()) {
+            // Latency is measured from the scheduled start so that time spent
+            // waiting for a free worker when behind the rate is included.
+            long now = System.nanoTime();
+            long scheduled = 0 < rate ?
+                start + (long) (slots.getAndIncrement() * NANOS_PER_SECOND / rate) :
+                now;
+            if (deadline <= scheduled || deadline <= now) {
+              return;
+            }
+            if (now < scheduled) {
+              try {
+                TimeUnit.NANOSECONDS.sleep(scheduled - now);
+              } catch (InterruptedException e) {
+                return;
+              }
+            }
+            execute(pick(random, totalWeight), random, report, scheduled);
+          }
+        }
+      }));
+    }
+    try {
+      for (Future<?> worker : running) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CrudException("Interrupted during load run", e);
+    } catch (ExecutionException e) {
+      throw new CrudException("Load worker failed", e.getCause());
+    } finally {
+      workers.shutdownNow();
+    }
+    report.setElapsedNanos(System.nanoTime() - start);
+    if (null != throttleCounter) {
+      Map<LoadOperation, Long> throttledAfter = throttles();
+      for (LoadOperation operation : LoadOperation.values()) {
+        report.get(operation).throttled(throttledAfter.get(operation) -
+            throttledBefore.get(operation));
+      }
+    }
+    log.info("Load run complete\n{}", report);
+    if (0 < rate && report.getAchievedRate() < rate * 0.95) {
+      log.warn("Achieved {} ops/s against a target of {}, the {} workers " +
+          "could not keep up", report.getAchievedRate(), rate, concurrency);
+    }
+    return report;
+  }
+
+  /**
+   * Delete the messages created by previous runs which are still tracked.
+   * Messages created once the pool limit was reached are not tracked.
+   */
+  public int deleteCreated() throws CrudException {
+    int deleted = 0;
+    while (true) {
+      T message = take(null);
+      if (null == message) {
+        return deleted;
+      }
+      store.delete(message);
+      deleted++;
+    }
+  }
+
+  void execute(LoadOperation operation, Random random, LoadReport report,
+      long start) {
+    T existing = null;
+    boolean taken = LoadOperation.UPDATE == operation ||
+        LoadOperation.DELETE == operation;
+    if (operation.needsExisting()) {
+      existing = taken ? take(random) : peek(random);
+      if (null == existing) {
+        operation = LoadOperation.CREATE;
+      }
+    }
+    LoadReport.Operation stats = report.get(operation);
+    try {
+      switch (operation) {
+        case CREATE:
+          offer(store.create(factory.newMessage(size(random))));
+          break;
+
+        case READ:
+          T.Builder urn = prototype.clone()
+              .setField(urnField, existing.getField(urnField));
+          drain(store.read(urn), Integer.MAX_VALUE);
+          break;
+
+        case QUERY:
+          T.Builder query = prototype.clone()
+              .setField(indexField, existing.getField(indexField));
+          drain(store.read(query), queryLimit);
+          break;
+
+        case SCAN:
+          drain(store.read(prototype.clone()), scanLimit);
+          break;
+
+        case UPDATE:
+          T.Builder update = factory.newMessage(size(random))
+              .setField(urnField, existing.getField(urnField));
+          T updated = store.update(update);
+          existing = null;
+          offer(updated);
+          break;
+
+        case DELETE:
+          store.delete(existing);
+          existing = null;
+          break;
+      }
+      stats.succeeded(System.nanoTime() - start);
+    } catch (CrudException e) {
+      failed(stats, e);
+    } catch (RuntimeException e) {
+      failed(stats, e);
+    } finally {
+      if (taken && null != existing) {
+        offer(existing);
+      }
+    }
+  }
+
+  private void failed(LoadReport.Operation stats, Exception e) {
+    stats.failed();
+    log.debug("Load operation failed", e);
+    if (null != throttleCounter) {
+      return;
+    }
+    for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+      if (cause instanceof ProvisionedThroughputExceededException) {
+        stats.throttled(1);
+        return;
+      }
+    }
+  }
+
+  private Map<LoadOperation, Long> throttles() {
+    Map<LoadOperation, Long> throttles = Maps.newEnumMap(LoadOperation.class);
+    for (LoadOperation operation : LoadOperation.values()) {
+      throttles.put(operation, null == throttleCounter ? 0 :
+          throttleCounter.get(operation));
+    }
+    return throttles;
+  }
+
+  private void drain(CrudIterator<T> iterator, int limit) throws CrudException {
+    try {
+      for (int i = 0; i < limit && iterator.hasNext(); i++) {
+        iterator.next();
+      }
+    } finally {
+      iterator.close();
+    }
+  }
+
+  private LoadOperation pick(Random random, int totalWeight) {
+    int choice = random.nextInt(totalWeight);
+    for (Map.Entry<LoadOperation, Integer> entry : mix.entrySet()) {
+      choice -= entry.getValue();
+      if (choice < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("Operation weights changed during run");
+  }
+
+  private int size(Random random) {
+    int choice = random.nextInt(total(sizeWeights));
+    for (int i = 0; i < sizes.size(); i++) {
+      choice -= sizeWeights.get(i);
+      if (choice < 0) {
+        return sizes.get(i);
+      }
+    }
+    return sizes.get(sizes.size() - 1);
+  }
+
+  private static int total(Iterable<Integer> weights) {
+    int total = 0;
+    for (Integer weight : weights) {
+      total += weight;
+    }
+    return total;
+  }
+
+  private void offer(T message) {
+    synchronized (created) {
+      if (created.size() < poolLimit) {
+        created.add(message);
+      }
+    }
+  }
+
+  private T peek(Random random) {
+    synchronized (created) {
+      if (created.isEmpty()) {
+        return null;
+      }
+      return created.get(random.nextInt(created.size()));
+    }
+  }
+
+  private T take(Random random) {
+    synchronized (created) {
+      if (created.isEmpty()) {
+        return null;
+      }
+      int index = null == random ? created.size() - 1 :
+          random.nextInt(created.size());
+      T last = created.remove(created.size() - 1);
+      if (index == created.size()) {
+        return last;
+      }
+      return created.set(index, last);
+    }
+  }
+
+  public static class Builder<M extends Message> {
+
+    private LoadHarness<M> result = new LoadHarness<M>();
+    private String urnFieldName = "urn";
+    private String indexFieldName;
+
+    public Builder<M> setStore(DynamoUrnFieldStore<M> store) {
+      result.store = store;
+      return this;
+    }
+
+    public Builder<M> setPrototype(M.Builder prototype) {
+      result.prototype = prototype;
+      return this;
+    }
+
+    public Builder<M> setMessageFactory(MessageFactory<M> factory) {
+      result.factory = factory;
+      return this;
+    }
+
+    /**
+     * Counter installed on the store client. Without one only throttles that
+     * exhausted the client retries are counted.
+     */
+    public Builder<M> setThrottleCounter(ThrottleCounter throttleCounter) {
+      result.throttleCounter = throttleCounter;
+      return this;
+    }
+
+    public Builder<M> setUrnField(String fieldName) {
+      urnFieldName = fieldName;
+      return this;
+    }
+
+    /**
+     * Secondary index field used by {@link LoadOperation#QUERY}, queried with
+     * the value of a created message.
+     */
+    public Builder<M> setIndexField(String fieldName) {
+      indexFieldName = fieldName;
+      return this;
+    }
+
+    /**
+     * Relative weight of an operation in the mix. Operations default to a
+     * weight of zero.
+     */
+    public Builder<M> withOperation(LoadOperation operation, int weight) {
+      checkArgument(0 <= weight, "Weight must not be negative: %s", weight);
+      result.mix.put(operation, weight);
+      return this;
+    }
+
+    /**
+     * Relative weight of a message size in bytes. Defaults to 100 bytes when
+     * no sizes are given.
+     */
+    public Builder<M> withMessageSize(int size, int weight) {
+      checkArgument(0 <= size, "Size must not be negative: %s", size);
+      checkArgument(0 < weight, "Weight must be positive: %s", weight);
+      result.sizes.add(size);
+      result.sizeWeights.add(weight);
+      return this;
+    }
+
+    public Builder<M> setConcurrency(int concurrency) {
+      checkArgument(0 < concurrency, "Concurrency must be positive: %s",
+          concurrency);
+      result.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Target operations per second across all workers. Zero runs as fast as
+     * the workers allow.
+     */
+    public Builder<M> setRate(double rate) {
+      checkArgument(0 <= rate, "Rate must not be negative: %s", rate);
+      result.rate = rate;
+      return this;
+    }
+
+    public Builder<M> setDuration(long duration, TimeUnit unit) {
+      result.durationMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Maximum number of items read by each scan.
+     */
+    public Builder<M> setScanLimit(int scanLimit) {
+      result.scanLimit = scanLimit;
+      return this;
+    }
+
+    /**
+     * Maximum number of items read by each query. Bounds the query cost as
+     * items sharing an index value build up in the table.
+     */
+    public Builder<M> setQueryLimit(int queryLimit) {
+      result.queryLimit = queryLimit;
+      return this;
+    }
+
+    /**
+     * Maximum number of created messages tracked for later operations.
+     */
+    public Builder<M> setPoolLimit(int poolLimit) {
+      result.poolLimit = poolLimit;
+      return this;
+    }
+
+    public LoadHarness<M> build() throws CrudException {
+      checkNotNull(result.store, "store");
+      checkNotNull(result.prototype, "prototype");
+      checkNotNull(result.factory, "message factory");
+      checkState(0 < total(result.mix.values()), "No operations in the mix");
+      if (result.sizes.isEmpty()) {
+        withMessageSize(100, 1);
+      }
+      result.urnField = field(urnFieldName);
+      if (null == result.throttleCounter) {
+        log.warn("No throttle counter set, throttles retried by the client " +
+            "will not be counted");
+      }
+      Integer queries = result.mix.get(LoadOperation.QUERY);
+      if (null != indexFieldName) {
+        result.indexField = field(indexFieldName);
+      } else if (null != queries && 0 < queries) {
+        throw new CrudException("Query operations need an index field");
+      }
+      return result;
+    }
+
+    private FieldDescriptor field(String fieldName) throws CrudException {
+      for (FieldDescriptor field : result.prototype.getDescriptorForType().getFields()) {
+        if (field.getName().equals(fieldName)) {
+          return field;
+        }
+      }
+      throw new CrudException("Unknown field name: " + fieldName);
+    }
+  }
+}
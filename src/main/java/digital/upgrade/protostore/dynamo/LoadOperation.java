@@ -0,0 +1,29 @@
+package digital.upgrade.protostore.dynamo;
+
+/**
+ * Store operations generated by the {@link LoadHarness}.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public enum LoadOperation {
+
+  CREATE(false),
+  READ(true),
+  QUERY(true),
+  SCAN(false),
+  UPDATE(true),
+  DELETE(true);
+
+  private final boolean existing;
+
+  LoadOperation(boolean existing) {
+    this.existing = existing;
+  }
+
+  /**
+   * Whether the operation acts on a previously created message.
+   */
+  boolean needsExisting() {
+    return existing;
+  }
+}
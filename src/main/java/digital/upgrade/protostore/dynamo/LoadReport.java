@@ -0,0 +1,152 @@
+package digital.upgrade.protostore.dynamo;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput, latency percentiles and throttle counts per operation from a
+ * {@link LoadHarness} run. Latencies are in microseconds and only include
+ * successful operations. Throttles count throttled request attempts,
+ * including those retried by the client when a {@link ThrottleCounter} is
+ * installed, and failures include operations that ran out of retries.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class LoadReport {
+
+  private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private final Map<LoadOperation, Operation> operations =
+      Maps.newEnumMap(LoadOperation.class);
+  private long elapsedNanos;
+  private double targetRate;
+
+  LoadReport() {
+    for (LoadOperation operation : LoadOperation.values()) {
+      operations.put(operation, new Operation());
+    }
+  }
+
+  Operation get(LoadOperation operation) {
+    return operations.get(operation);
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  void setTargetRate(double targetRate) {
+    this.targetRate = targetRate;
+  }
+
+  /**
+   * Operations per second the run was scheduled at, zero when unlimited.
+   */
+  public double getTargetRate() {
+    return targetRate;
+  }
+
+  /**
+   * Operations per second actually started, successful or not. Below the
+   * target rate when there were too few workers to keep up.
+   */
+  public double getAchievedRate() {
+    long total = 0;
+    for (LoadOperation operation : LoadOperation.values()) {
+      total += getCount(operation) + getFailures(operation);
+    }
+    return rate(total);
+  }
+
+  public long getElapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+  }
+
+  public long getCount(LoadOperation operation) {
+    return operations.get(operation).latency.count();
+  }
+
+  public long getFailures(LoadOperation operation) {
+    return operations.get(operation).failures.get();
+  }
+
+  public long getThrottles(LoadOperation operation) {
+    return operations.get(operation).throttles.get();
+  }
+
+  /**
+   * Successful operations per second.
+   */
+  public double getThroughput(LoadOperation operation) {
+    return rate(getCount(operation));
+  }
+
+  public double getTotalThroughput() {
+    long total = 0;
+    for (LoadOperation operation : LoadOperation.values()) {
+      total += getCount(operation);
+    }
+    return rate(total);
+  }
+
+  public long getPercentileMicros(LoadOperation operation, double percentile) {
+    return operations.get(operation).latency.percentileMicros(percentile);
+  }
+
+  public long getMaxMicros(LoadOperation operation) {
+    return operations.get(operation).latency.maxMicros();
+  }
+
+  private double rate(long count) {
+    if (0 == elapsedNanos) {
+      return 0;
+    }
+    return count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-8s %10s %8s %9s %10s %9s %9s %9s %9s %9s%n",
+        "op", "count", "failed", "throttled", "ops/s", "p50", "p90", "p99",
+        "p99.9", "max"));
+    for (LoadOperation operation : LoadOperation.values()) {
+      report.append(String.format("%-8s %10d %8d %9d %10.1f",
+          operation.name().toLowerCase(), getCount(operation),
+          getFailures(operation), getThrottles(operation),
+          getThroughput(operation)));
+      for (double percentile : PERCENTILES) {
+        report.append(String.format(" %9d", getPercentileMicros(operation,
+            percentile)));
+      }
+      report.append(String.format(" %9d%n", getMaxMicros(operation)));
+    }
+    report.append(String.format("total %.1f ops/s over %d ms, achieved %.1f " +
+        "of target %s ops/s", getTotalThroughput(), getElapsedMillis(),
+        getAchievedRate(), 0 < targetRate ? String.format("%.1f", targetRate) :
+            "unlimited"));
+    return report.toString();
+  }
+
+  static class Operation {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong throttles = new AtomicLong();
+
+    void succeeded(long nanos) {
+      latency.record(nanos);
+    }
+
+    void failed() {
+      failures.incrementAndGet();
+    }
+
+    void throttled(long count) {
+      throttles.addAndGet(count);
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package digital.upgrade.protostore.dynamo;
+
+import com.google.protobuf.Message;
+
+/**
+ * Generates message content for the {@link LoadHarness}.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public interface MessageFactory<T extends Message> {
+
+  /**
+   * Return a builder with every required field set whose stored size is
+   * approximately the given number of bytes. The urn is set by the store.
+   */
+  public T.Builder newMessage(int size);
+}
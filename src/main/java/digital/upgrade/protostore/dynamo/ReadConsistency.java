@@ -0,0 +1,26 @@
+package digital.upgrade.protostore.dynamo;
+
+/**
+ * Consistency used when reading a single item by urn.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public enum ReadConsistency {
+
+  /**
+   * Strongly consistent get. Costs a full read unit per 4KB.
+   */
+  STRONG,
+
+  /**
+   * Eventually consistent get at half the read unit cost. A recently written
+   * item may not yet be visible.
+   */
+  EVENTUAL,
+
+  /**
+   * Eventually consistent get which is retried as a strongly consistent get
+   * when the item is not found.
+   */
+  EVENTUAL_WITH_STRONG_FALLBACK
+}
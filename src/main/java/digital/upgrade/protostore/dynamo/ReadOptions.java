@@ -0,0 +1,83 @@
+package digital.upgrade.protostore.dynamo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Options applied to reads by urn. Set a store wide default with
+ * {@link DynamoUrnFieldStore.Builder#setReadOptions(ReadOptions)} or pass
+ * options to {@link DynamoUrnFieldStore#read(com.google.protobuf.Message.Builder, ReadOptions)}
+ * for a single call.
+ *
+ * Hedged reads send a duplicate eventually consistent get when the first has
+ * not returned within the given percentile of recent get latencies and use
+ * whichever response arrives first. Until enough latencies have been
+ * observed the hedge delay is used instead. Hedging only applies to
+ * eventually consistent gets.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class ReadOptions {
+
+  public static final ReadOptions DEFAULT = new Builder().build();
+
+  private ReadConsistency consistency = ReadConsistency.STRONG;
+  private double hedgePercentile = 0;
+  private long hedgeDelayMillis = 20;
+
+  private ReadOptions() {}
+
+  public ReadConsistency getConsistency() {
+    return consistency;
+  }
+
+  public boolean isHedged() {
+    return 0 < hedgePercentile;
+  }
+
+  public double getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  public long getHedgeDelayMillis() {
+    return hedgeDelayMillis;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private ReadOptions result = new ReadOptions();
+
+    public Builder setConsistency(ReadConsistency consistency) {
+      result.consistency = checkNotNull(consistency, "consistency");
+      return this;
+    }
+
+    /**
+     * Enable hedging at the given percentile of observed get latency, for
+     * example 0.95. Zero disables hedging.
+     */
+    public Builder setHedgePercentile(double percentile) {
+      checkArgument(0 <= percentile && percentile < 1,
+          "Hedge percentile must be in [0, 1): %s", percentile);
+      result.hedgePercentile = percentile;
+      return this;
+    }
+
+    /**
+     * Delay before hedging used until enough latencies have been recorded.
+     */
+    public Builder setHedgeDelayMillis(long delay) {
+      checkArgument(0 <= delay, "Hedge delay must not be negative: %s", delay);
+      result.hedgeDelayMillis = delay;
+      return this;
+    }
+
+    public ReadOptions build() {
+      return result;
+    }
+  }
+}
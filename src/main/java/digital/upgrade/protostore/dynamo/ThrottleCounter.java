@@ -0,0 +1,81 @@
+package digital.upgrade.protostore.dynamo;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count throttled request attempts per {@link LoadOperation}, including the
+ * attempts the client retries itself and which never reach the caller as
+ * an exception. Install it on the store with
+ * {@link DynamoUrnFieldStore.Builder#setRequestMetricCollector} and hand the
+ * same counter to the {@link LoadHarness}. Batch gets made while hydrating
+ * index results count as queries.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class ThrottleCounter extends RequestMetricCollector {
+
+  private final Map<LoadOperation, AtomicLong> throttles =
+      Maps.newEnumMap(LoadOperation.class);
+
+  public ThrottleCounter() {
+    for (LoadOperation operation : LoadOperation.values()) {
+      throttles.put(operation, new AtomicLong());
+    }
+  }
+
+  @Override
+  public void collectMetrics(Request<?> request, Response<?> response) {
+    TimingInfo timing = request.getAWSRequestMetrics().getTimingInfo();
+    Number count = timing.getCounter(Field.ThrottleException.name());
+    if (null == count || 0 == count.longValue()) {
+      return;
+    }
+    LoadOperation operation = operation(request.getOriginalRequest());
+    if (null != operation) {
+      throttles.get(operation).addAndGet(count.longValue());
+    }
+  }
+
+  public long get(LoadOperation operation) {
+    return throttles.get(operation).get();
+  }
+
+  static LoadOperation operation(AmazonWebServiceRequest request) {
+    if (request instanceof PutItemRequest) {
+      return LoadOperation.CREATE;
+    }
+    if (request instanceof GetItemRequest) {
+      return LoadOperation.READ;
+    }
+    if (request instanceof QueryRequest ||
+        request instanceof BatchGetItemRequest) {
+      return LoadOperation.QUERY;
+    }
+    if (request instanceof ScanRequest) {
+      return LoadOperation.SCAN;
+    }
+    if (request instanceof UpdateItemRequest) {
+      return LoadOperation.UPDATE;
+    }
+    if (request instanceof DeleteItemRequest) {
+      return LoadOperation.DELETE;
+    }
+    return null;
+  }
+}
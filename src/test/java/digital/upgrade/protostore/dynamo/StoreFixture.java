@@ -0,0 +1,39 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+import digital.upgrade.protostore.dynamo.TestModel.TestDynamoMessage;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Store builders for the test table using the credentials in
+ * aws_credentials.properties.
+ *
+ * @author damien@upgrade-digital.com
+ */
+class StoreFixture {
+
+  private static final String ACCESS_KEY = "ACCESS_KEY",
+      REGION = "REGION",
+      SECRET_KEY = "SECRET_KEY";
+
+  private StoreFixture() {}
+
+  static DynamoUrnFieldStore.Builder<TestDynamoMessage> builder()
+      throws CrudException {
+    Properties properties = new Properties();
+    try {
+      properties.load(StoreFixture.class.getResourceAsStream(
+          "aws_credentials.properties"));
+    } catch (IOException e) {
+      throw new CrudException("Storage configuration error, credentials not " +
+          "found in aws_credentials.properties (in resources?)", e);
+    }
+    return new DynamoUrnFieldStore.Builder<TestDynamoMessage>()
+        .setAccessKey(properties.getProperty(ACCESS_KEY))
+        .setSecretKey(properties.getProperty(SECRET_KEY))
+        .setRegion(properties.getProperty(REGION))
+        .setPrototype(TestDynamoMessage.newBuilder());
+  }
+}
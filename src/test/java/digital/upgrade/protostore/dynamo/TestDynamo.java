@@ -6,12 +6,12 @@ import net.sitemorph.protostore.MessageNotFoundException;
 import digital.upgrade.protostore.dynamo.TestModel.Fate;
 import digital.upgrade.protostore.dynamo.TestModel.TestDynamoMessage;
 
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.google.protobuf.ByteString;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
-import java.io.IOException;
-import java.util.Properties;
+import java.util.Arrays;
 import java.util.UUID;
 
 import static org.testng.Assert.assertEquals;
@@ -25,25 +25,16 @@ import static org.testng.Assert.assertTrue;
  */
 public class TestDynamo {
 
-  private static final String ACCESS_KEY = "ACCESS_KEY",
-      REGION = "REGION",
-      SECRET_KEY = "SECRET_KEY";
   private TestDynamoMessage message;
 
   DynamoUrnFieldStore<TestDynamoMessage> getStore() throws CrudException {
-    Properties properties = new Properties();
-    try {
-      properties.load(getClass().getResourceAsStream("aws_credentials.properties"));
-    } catch (IOException e) {
-      throw new CrudException("Storage configuration error, credentials not " +
-          "found in aws_credentials.properties (in resources?)", e);
-    }
-    return new DynamoUrnFieldStore.Builder<TestDynamoMessage>()
-        .setAccessKey(properties.getProperty(ACCESS_KEY))
-        .setSecretKey(properties.getProperty(SECRET_KEY))
-        .setRegion(properties.getProperty(REGION))
-        .setPrototype(TestDynamoMessage.newBuilder())
-        .withSecondaryIndex("secondary")
+    return getStore(ProjectionType.ALL);
+  }
+
+  DynamoUrnFieldStore<TestDynamoMessage> getStore(ProjectionType projection)
+      throws CrudException {
+    return StoreFixture.builder()
+        .withSecondaryIndex("secondary", projection)
         .build();
   }
 
@@ -74,6 +65,32 @@ public class TestDynamo {
     equalMessage(test, message);
   }
 
+  @Test(dependsOnMethods = "testCreate")
+  public void testReadEventualWithFallback() throws CrudException {
+    DynamoUrnFieldStore<TestDynamoMessage> store = getStore();
+    ReadOptions options = ReadOptions.newBuilder()
+        .setConsistency(ReadConsistency.EVENTUAL_WITH_STRONG_FALLBACK)
+        .build();
+    CrudIterator<TestDynamoMessage> iterator = store.read(
+        TestDynamoMessage.newBuilder()
+            .setUrn(message.getUrn()), options);
+    assertTrue(iterator.hasNext(), "Fallback read should find the message");
+    equalMessage(iterator.next(), message);
+  }
+
+  @Test
+  public void testReadHedgedNone() throws CrudException {
+    DynamoUrnFieldStore<TestDynamoMessage> store = getStore();
+    ReadOptions options = ReadOptions.newBuilder()
+        .setConsistency(ReadConsistency.EVENTUAL)
+        .setHedgePercentile(0.95)
+        .setHedgeDelayMillis(0)
+        .build();
+    CrudIterator<TestDynamoMessage> messages = store.read(TestDynamoMessage.newBuilder()
+        .setUrn(UUID.randomUUID().toString()), options);
+    assertFalse(messages.hasNext(), "Message iterator should be empty");
+  }
+
   private void equalMessage(TestDynamoMessage test, TestDynamoMessage expect) {
     assertEquals(test.getUrn(), expect.getUrn(), "urn");
     assertEquals(test.getALong(), expect.getALong(), "long");
@@ -153,6 +170,52 @@ public class TestDynamo {
     assertFalse(read.hasNext(), "Only expected two message " + read.next());
   }
 
+  @Test(dependsOnMethods = "testSecondaryCreate")
+  public void testSecondaryIndexIn() throws CrudException {
+    DynamoUrnFieldStore<TestDynamoMessage> store = getStore();
+    CrudIterator<TestDynamoMessage> read = store.readIn(TestDynamoMessage.newBuilder(),
+        "secondary", Arrays.asList("a", "c", "z", "a"), true);
+    int a = 0, c = 0;
+    while (read.hasNext()) {
+      String secondary = read.next().getSecondary();
+      if ("a".equals(secondary)) {
+        a++;
+      } else if ("c".equals(secondary)) {
+        c++;
+      }
+    }
+    read.close();
+    assertEquals(a, 2, "Expected distinct secondary a messages");
+    assertEquals(c, 1, "Expected secondary c message");
+  }
+
+  @Test(dependsOnMethods = "testSecondaryCreate")
+  public void testSecondaryIndexKeysOnly() throws CrudException {
+    DynamoUrnFieldStore<TestDynamoMessage> store = getStore(ProjectionType.KEYS_ONLY);
+    CrudIterator<TestDynamoMessage> read = store.read(TestDynamoMessage.newBuilder()
+        .setSecondary("a"));
+    for (int i = 0; i < 2; i++) {
+      assertTrue(read.hasNext(), "Expected a message");
+      TestDynamoMessage test = read.next();
+      assertEquals(test.getSecondary(), "a", "Expected secondary index");
+      assertEquals(test.getAString(), message.getAString(), "Expected hydrated item");
+      assertEquals(test.getAByte().toByteArray(), message.getAByte().toByteArray(),
+          "Expected hydrated item");
+    }
+    assertFalse(read.hasNext(), "Only expected two messages");
+    read.close();
+
+    read = store.readIn(TestDynamoMessage.newBuilder(), "secondary",
+        Arrays.asList("a", "c"), true);
+    int count = 0;
+    while (read.hasNext()) {
+      assertEquals(read.next().getALong(), message.getALong(), "Expected hydrated item");
+      count++;
+    }
+    read.close();
+    assertEquals(count, 3, "Expected secondary a and c messages");
+  }
+
   // TODO Test whether multiple pages are returned for the iterator from item
   // collections#
 
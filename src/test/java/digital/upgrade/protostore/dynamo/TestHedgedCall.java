@@ -0,0 +1,78 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Hedged calls without a dynamo table.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class TestHedgedCall {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @AfterClass
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testHedgeFiresAndFirstResponseWins() throws CrudException {
+    final AtomicInteger calls = new AtomicInteger();
+    Callable<String> call = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        if (1 == calls.incrementAndGet()) {
+          Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+          return "slow";
+        }
+        return "hedge";
+      }
+    };
+    long start = System.nanoTime();
+    String result = HedgedCall.first(executor, call, 10);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertEquals(result, "hedge", "Expected the hedge response");
+    assertEquals(calls.get(), 2, "Expected a hedge to be sent");
+    assertTrue(elapsed < TimeUnit.SECONDS.toMillis(5),
+        "Should not wait for the slow call: " + elapsed);
+  }
+
+  @Test
+  public void testNoHedgeWhenFast() throws CrudException {
+    final AtomicInteger calls = new AtomicInteger();
+    Callable<String> call = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        calls.incrementAndGet();
+        return "fast";
+      }
+    };
+    assertEquals(HedgedCall.first(executor, call, 5000), "fast", "result");
+    assertEquals(calls.get(), 1, "Expected no hedge");
+  }
+
+  @Test
+  public void testLatencyPercentile() {
+    LatencyTracker tracker = new LatencyTracker(100);
+    assertEquals(tracker.percentileMillis(0.9, 7), 7,
+        "Expected the default before enough samples");
+    for (int i = 1; i <= 100; i++) {
+      tracker.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    assertEquals(tracker.percentileMillis(0.9, 7), 91, "p90");
+    assertEquals(tracker.percentileMillis(0.5, 7), 51, "p50");
+  }
+}
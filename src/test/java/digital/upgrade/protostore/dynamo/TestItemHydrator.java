@@ -0,0 +1,108 @@
+package digital.upgrade.protostore.dynamo;
+
+import digital.upgrade.protostore.dynamo.TestModel.TestDynamoMessage;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.Descriptors.Descriptor;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Hydration of partially projected index results with a stubbed batch get.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class TestItemHydrator {
+
+  private static final Descriptor DESCRIPTOR = TestDynamoMessage.getDescriptor();
+
+  /**
+   * Hydrator whose batch get returns full items, in reverse order, for every
+   * requested urn except "deleted".
+   */
+  private static class StubHydrator extends ItemHydrator {
+
+    private final List<Object> requested = Lists.newArrayList();
+
+    StubHydrator(boolean checkCovered) {
+      super(null, null, DESCRIPTOR.findFieldByName("urn"), DESCRIPTOR, null,
+          checkCovered);
+    }
+
+    @Override
+    Map<String, Item> fetch(List<Object> urns) {
+      requested.addAll(urns);
+      Map<String, Item> fetched = Maps.newLinkedHashMap();
+      for (Object urn : Lists.reverse(urns)) {
+        if (!"deleted".equals(urn)) {
+          fetched.put((String) urn, fullItem((String) urn));
+        }
+      }
+      return fetched;
+    }
+  }
+
+  private static Item keyItem(String urn) {
+    return new Item()
+        .withPrimaryKey("urn", urn)
+        .withString("secondary", "a");
+  }
+
+  private static Item fullItem(String urn) {
+    return new Item()
+        .withPrimaryKey("urn", urn)
+        .withLong("aLong", 1L)
+        .withInt("aInt", 2)
+        .withBoolean("aBool", true)
+        .withString("aString", urn)
+        .withString("aFate", "TO_BE")
+        .withFloat("aFloat", 3F)
+        .withDouble("aDouble", 4D)
+        .withBinary("aByte", new byte[]{5})
+        .withNull("change")
+        .withString("secondary", "a");
+  }
+
+  @Test
+  public void testHydrateKeepsIndexOrder() throws Exception {
+    StubHydrator hydrator = new StubHydrator(false);
+    List<Item> hydrated = hydrator.hydrate(Arrays.asList(keyItem("1"),
+        keyItem("2"), keyItem("deleted"), keyItem("3")));
+    assertEquals(hydrator.requested, Arrays.<Object>asList("1", "2", "deleted", "3"),
+        "Expected every key fetched");
+    assertEquals(hydrated.size(), 3, "Expected deleted item dropped");
+    assertEquals(hydrated.get(0).getString("aString"), "1", "order");
+    assertEquals(hydrated.get(1).getString("aString"), "2", "order");
+    assertEquals(hydrated.get(2).getString("aString"), "3", "order");
+  }
+
+  @Test
+  public void testCoveredItemsSkipFetch() throws Exception {
+    StubHydrator hydrator = new StubHydrator(true);
+    Item covered = fullItem("2");
+    List<Item> hydrated = hydrator.hydrate(Arrays.asList(keyItem("1"),
+        covered, keyItem("3")));
+    assertEquals(hydrator.requested, Arrays.<Object>asList("1", "3"),
+        "Covered item should not be fetched");
+    assertEquals(hydrated.size(), 3, "Expected all items");
+    assertEquals(hydrated.get(0).getString("aString"), "1", "order");
+    assertSame(hydrated.get(1), covered, "Covered item returned as is");
+    assertEquals(hydrated.get(2).getString("aString"), "3", "order");
+  }
+
+  @Test
+  public void testAllCoveredSkipsBatchGet() throws Exception {
+    StubHydrator hydrator = new StubHydrator(true);
+    List<Item> keys = Arrays.asList(fullItem("1"), fullItem("2"));
+    assertSame(hydrator.hydrate(keys), keys, "Expected items returned as is");
+    assertEquals(hydrator.requested.size(), 0, "Expected no batch get");
+  }
+}
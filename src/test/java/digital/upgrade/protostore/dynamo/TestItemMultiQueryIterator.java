@@ -0,0 +1,81 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+import digital.upgrade.protostore.dynamo.TestModel.TestDynamoMessage;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Multi-value index reads with the per value query stubbed out.
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class TestItemMultiQueryIterator {
+
+  private static final FieldDescriptor SECONDARY =
+      TestDynamoMessage.getDescriptor().findFieldByName("secondary");
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @AfterClass
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private ItemMultiQueryIterator<TestDynamoMessage> iterator(
+      Collection<?> values) throws CrudException {
+    ItemMultiQueryIterator<TestDynamoMessage> iterator =
+        new ItemMultiQueryIterator<TestDynamoMessage>(
+            TestDynamoMessage.newBuilder(), SECONDARY, null, values, executor,
+            4, null, null) {
+          @Override
+          Iterator<Item> query(Object value) {
+            return Collections.<Item>emptyList().iterator();
+          }
+        };
+    iterator.initialise();
+    return iterator;
+  }
+
+  @Test
+  public void testNoMatchesFinishesWithoutWaiting() throws CrudException {
+    // Warm up the executor threads so the timing covers the iterator only.
+    assertFalse(iterator(Arrays.asList("x", "y")).hasNext(), "No matches");
+    long start = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      ItemMultiQueryIterator<TestDynamoMessage> read = iterator(
+          Arrays.asList("a", "b", "c", "d", "e", "f"));
+      assertFalse(read.hasNext(), "Expected no matches");
+      read.close();
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(elapsed < 200, "Ten empty reads should not wait for the poll " +
+        "timeout, took " + elapsed + " ms");
+  }
+
+  @Test
+  public void testNoValuesFinishesWithoutWaiting() throws CrudException {
+    long start = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      assertFalse(iterator(Collections.emptyList()).hasNext(),
+          "Expected no matches");
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(elapsed < 100, "Empty value reads should return at once, took " +
+        elapsed + " ms");
+  }
+}
@@ -0,0 +1,90 @@
+package digital.upgrade.protostore.dynamo;
+
+import net.sitemorph.protostore.CrudException;
+import digital.upgrade.protostore.dynamo.TestModel.Fate;
+import digital.upgrade.protostore.dynamo.TestModel.TestDynamoMessage;
+
+import com.google.protobuf.ByteString;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Load run against the test table. Skipped unless a duration in seconds is
+ * given as the load run leaves the table busy for other tests, for example:
+ *
+ *   mvn test -Dtest=TestLoadHarness -Dload.duration=300 -Dload.rate=500
+ *       -Dload.concurrency=64 -Dload.endpoint=http://localhost:8000
+ *
+ * @author damien@upgrade-digital.com
+ */
+public class TestLoadHarness {
+
+  DynamoUrnFieldStore<TestDynamoMessage> getStore(ThrottleCounter throttles)
+      throws CrudException {
+    return StoreFixture.builder()
+        .setEndpoint(System.getProperty("load.endpoint"))
+        .setRequestMetricCollector(throttles)
+        .withSecondaryIndex("secondary")
+        .build();
+  }
+
+  @Test
+  public void testLoadMix() throws CrudException {
+    if (null == Long.getLong("load.duration")) {
+      throw new SkipException("Set load.duration to run the load harness");
+    }
+    final Random random = new Random();
+    final String run = UUID.randomUUID().toString();
+    ThrottleCounter throttles = new ThrottleCounter();
+    LoadHarness<TestDynamoMessage> harness = new LoadHarness.Builder<TestDynamoMessage>()
+        .setStore(getStore(throttles))
+        .setThrottleCounter(throttles)
+        .setPrototype(TestDynamoMessage.newBuilder())
+        .setMessageFactory(new MessageFactory<TestDynamoMessage>() {
+          @Override
+          public TestDynamoMessage.Builder newMessage(int size) {
+            byte[] payload = new byte[size];
+            random.nextBytes(payload);
+            return TestDynamoMessage.newBuilder()
+                .setUrn("")
+                .setALong(random.nextLong())
+                .setAInt(random.nextInt())
+                .setABool(random.nextBoolean())
+                .setAString("load")
+                .setAFate(Fate.TO_BE)
+                .setAFloat(random.nextFloat())
+                .setADouble(random.nextDouble())
+                .setAByte(ByteString.copyFrom(payload))
+                .setSecondary("load-" + run + "-" + random.nextInt(10));
+          }
+        })
+        .setIndexField("secondary")
+        .withOperation(LoadOperation.CREATE, 30)
+        .withOperation(LoadOperation.READ, 40)
+        .withOperation(LoadOperation.QUERY, 10)
+        .withOperation(LoadOperation.SCAN, 1)
+        .withOperation(LoadOperation.UPDATE, 15)
+        .withOperation(LoadOperation.DELETE, 4)
+        .withMessageSize(100, 8)
+        .withMessageSize(4000, 2)
+        .setConcurrency(Integer.getInteger("load.concurrency", 4))
+        .setRate(Double.parseDouble(System.getProperty("load.rate", "20")))
+        .setDuration(Long.getLong("load.duration"), TimeUnit.SECONDS)
+        .build();
+    LoadReport report;
+    try {
+      report = harness.run();
+    } finally {
+      harness.deleteCreated();
+    }
+    assertTrue(0 < report.getCount(LoadOperation.CREATE), "Expected creates");
+    assertEquals(report.getFailures(LoadOperation.READ), 0, "Read failures");
+  }
+}